@@ -0,0 +1,19 @@
+@rem
+@rem Generates TeamCity settings from a Kotlin DSL without running Gradle.
+@rem
+@rem Usage: teamcity-dsl-generate <format> <baseDir> <destDir>
+@rem
+@rem The generator classpath is read from the lock file written by the Gradle 'generatorLock' task,
+@rem by default build\teamcity-dsl\generator.lock, or the file set by the TEAMCITY_DSL_LOCK_FILE variable.
+@if "%DEBUG%" == "" @echo off
+setlocal
+
+set APP_HOME=%~dp0..
+if "%TEAMCITY_DSL_LOCK_FILE%" == "" set TEAMCITY_DSL_LOCK_FILE=build\teamcity-dsl\generator.lock
+
+set JAVA_EXE=java.exe
+if defined JAVA_HOME set JAVA_EXE=%JAVA_HOME%\bin\java.exe
+
+"%JAVA_EXE%" %JAVA_OPTS% -Dteamcity.dsl.lockFile="%TEAMCITY_DSL_LOCK_FILE%" -cp "%APP_HOME%\lib\*" com.github.rodm.teamcity.dsl.StandaloneGenerator %*
+
+endlocal & exit /b %ERRORLEVEL%
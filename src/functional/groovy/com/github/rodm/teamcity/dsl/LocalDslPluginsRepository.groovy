@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+
+/**
+ * A local Maven repository standing in for the TeamCity server's 'dsl-plugins-repository'. The DSL plugin
+ * artifacts are empty jars, enough for settings that only use the core Kotlin DSL.
+ */
+class LocalDslPluginsRepository {
+
+    static final String GROUP_PATH = 'org/jetbrains/teamcity'
+
+    static final String PLUGIN_VERSION = '1.0-SNAPSHOT'
+
+    static final List<String> PLUGINS = [
+            'ant', 'bugzilla', 'bundled', 'charisma', 'commandLineRunner', 'commit-status-publisher',
+            'docker-support', 'dotnet.cli', 'dotNetRunners', 'file-content-replacer', 'gradle', 'jetbrains.git',
+            'jira', 'Maven2', 'mercurial', 'perforce', 'powershell', 'ssh-manager', 'svn', 'swabra',
+            'teamcity-powershell', 'tfs', 'visualstudiotest'
+    ]
+
+    private final File root
+
+    LocalDslPluginsRepository(File root) {
+        this.root = root
+    }
+
+    File create() {
+        PLUGINS.each { plugin ->
+            String artifactId = "configs-dsl-kotlin-${plugin}"
+            File dir = new File(root, "${GROUP_PATH}/${artifactId}/${PLUGIN_VERSION}")
+            dir.mkdirs()
+            new File(dir, "${artifactId}-${PLUGIN_VERSION}.pom").text = pom(artifactId)
+            writeEmptyJar(new File(dir, "${artifactId}-${PLUGIN_VERSION}.jar"))
+        }
+        return root
+    }
+
+    URI getUri() {
+        return root.toURI()
+    }
+
+    private static String pom(String artifactId) {
+        """\
+        <?xml version="1.0" encoding="UTF-8"?>
+        <project xmlns="http://maven.apache.org/POM/4.0.0">
+            <modelVersion>4.0.0</modelVersion>
+            <groupId>org.jetbrains.teamcity</groupId>
+            <artifactId>${artifactId}</artifactId>
+            <version>${PLUGIN_VERSION}</version>
+        </project>
+        """.stripIndent()
+    }
+
+    private static void writeEmptyJar(File file) {
+        Manifest manifest = new Manifest()
+        manifest.mainAttributes.putValue('Manifest-Version', '1.0')
+        new JarOutputStream(new FileOutputStream(file), manifest).close()
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.testkit.runner.BuildResult
+import org.gradle.testkit.runner.GradleRunner
+import org.junit.BeforeClass
+import org.junit.ClassRule
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.gradle.testkit.runner.TaskOutcome.SUCCESS
+import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertTrue
+
+class TeamCityDSLPluginPerformanceTest {
+
+    static final String BUILD_SCRIPT = '''
+        plugins {
+            id 'com.github.rodm.teamcity-dsl'
+        }
+
+        repositories {
+            maven {
+                url findProperty('dslPluginsRepository')
+            }
+        }
+    '''.stripIndent()
+
+    static final String ROOT_SETTINGS_FILE = '''
+        package Project
+
+        import jetbrains.buildServer.configs.kotlin.v10.*
+
+        version = "10.0"
+        project {
+            uuid = "2c4c777e-8e46-4eaf-bf5d-eea999fdbd98"
+            extId = "Project"
+            name = "Project"
+            description = "Performance test project"
+        }
+    '''.stripIndent()
+
+    static final String SUB_PROJECT_SETTINGS_FILE = '''
+        package Project%1$d
+
+        import jetbrains.buildServer.configs.kotlin.v10.*
+
+        version = "10.0"
+        project {
+            uuid = "%2$s"
+            extId = "Project%1$d"
+            parentId = "Project"
+            name = "Project %1$d"
+            description = "%3$s"
+        }
+    '''.stripIndent()
+
+    static final String BUDGETS_RESOURCE = '/performance-budgets.properties'
+
+    @ClassRule
+    public static final TemporaryFolder repositoryDir = new TemporaryFolder()
+
+    @ClassRule
+    public static final TemporaryFolder warmupProjectDir = new TemporaryFolder()
+
+    @Rule
+    public final TemporaryFolder testProjectDir = new TemporaryFolder()
+
+    private static Properties budgets = new Properties()
+
+    private static List<String> arguments
+
+    /**
+     * Resolves the TeamCity DSL and Kotlin dependencies into the TestKit Gradle user home, so the measured
+     * builds can run offline and only time configuration and generation.
+     */
+    @BeforeClass
+    static void warmup() {
+        TeamCityDSLPluginPerformanceTest.getResourceAsStream(BUDGETS_RESOURCE).withStream { budgets.load(it) }
+        LocalDslPluginsRepository repository = new LocalDslPluginsRepository(repositoryDir.root)
+        repository.create()
+        arguments = ['-S', 'generateConfiguration', '-PdslPluginsRepository=' + repository.uri]
+
+        new File(warmupProjectDir.root, 'build.gradle') << BUILD_SCRIPT
+        File projectDir = warmupProjectDir.newFolder('.teamcity', 'Project')
+        new File(projectDir, 'settings.kts') << ROOT_SETTINGS_FILE
+        GradleRunner.create()
+                .withProjectDir(warmupProjectDir.root)
+                .withArguments(arguments)
+                .withPluginClasspath()
+                .build()
+    }
+
+    @Test
+    void 'generate configuration for a small settings tree'() {
+        measureGeneration(1)
+    }
+
+    @Test
+    void 'generate configuration for a medium settings tree'() {
+        measureGeneration(10)
+    }
+
+    @Test
+    void 'generate configuration for a large settings tree'() {
+        measureGeneration(50)
+    }
+
+    private void measureGeneration(int projects) {
+        new File(testProjectDir.root, 'build.gradle') << BUILD_SCRIPT
+        createSettingsTree(projects)
+
+        long first = timeBuild()
+        long rerun = timeBuild('--rerun-tasks')
+        File settingsFile = new File(testProjectDir.root, ".teamcity/Project1/settings.kts")
+        settingsFile.text = subProjectSettings(1, 'Modified project')
+        long incremental = timeBuild()
+
+        recordResults(projects, [first: first, rerun: rerun, incremental: incremental])
+        assertWithinBudget(projects, 'first', first)
+        assertWithinBudget(projects, 'rerun', rerun)
+        assertWithinBudget(projects, 'incremental', incremental)
+    }
+
+    private void createSettingsTree(int projects) {
+        File baseDir = testProjectDir.newFolder('.teamcity')
+        new File(baseDir, 'Project').mkdirs()
+        new File(baseDir, 'Project/settings.kts') << ROOT_SETTINGS_FILE
+        for (int i = 1; i <= projects; i++) {
+            File projectDir = new File(baseDir, "Project${i}")
+            projectDir.mkdirs()
+            new File(projectDir, 'settings.kts') << subProjectSettings(i, 'Generated project')
+        }
+    }
+
+    private static String subProjectSettings(int index, String description) {
+        String uuid = UUID.nameUUIDFromBytes("Project${index}".bytes).toString()
+        return String.format(SUB_PROJECT_SETTINGS_FILE, index, uuid, description)
+    }
+
+    private long timeBuild(String... extraArguments) {
+        long start = System.nanoTime()
+        BuildResult result = GradleRunner.create()
+                .withProjectDir(testProjectDir.getRoot())
+                .withArguments(arguments + ['--offline'] + (extraArguments as List))
+                .withPluginClasspath()
+                .build()
+        long elapsed = (System.nanoTime() - start) / 1000000L
+
+        assertEquals(SUCCESS, result.task(":generateConfiguration").getOutcome())
+        return elapsed
+    }
+
+    private static void recordResults(int projects, Map<String, Long> timings) {
+        String resultsDir = System.properties['performance.results.dir']
+        if (resultsDir) {
+            File resultsFile = new File(resultsDir, 'performance-results.properties')
+            resultsFile.parentFile.mkdirs()
+            timings.each { name, elapsed -> resultsFile << "${name}.${projects}=${elapsed}\n" }
+        }
+    }
+
+    private static void assertWithinBudget(int projects, String name, long elapsed) {
+        String key = "${name}.${projects}"
+        String baseline = budgets.getProperty(key)
+        if (baseline == null) {
+            return
+        }
+        double tolerance = budgets.getProperty('tolerance') as double
+        long budget = (baseline as long) * (1 + tolerance)
+        assertTrue("Generation of ${projects} project(s), ${name} took ${elapsed} ms, budget is ${budget} ms " +
+                "(baseline ${baseline} ms plus ${(tolerance * 100) as int}%)", elapsed <= budget)
+    }
+}
@@ -16,37 +16,62 @@
 
 package com.github.rodm.teamcity.dsl;
 
-import org.gradle.api.Action;
+import org.gradle.api.BuildCancelledException;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.tasks.options.Option;
 import org.gradle.api.provider.PropertyState;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.process.ExecResult;
-import org.gradle.process.JavaExecSpec;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.rodm.teamcity.dsl.TeamCityDSLPlugin.CONFIGURATION_NAME;
 import static com.github.rodm.teamcity.dsl.TeamCityDSLPlugin.DSL_EXCEPTION_FILENAME;
+import static com.github.rodm.teamcity.dsl.TeamCityDSLPlugin.DSL_PROFILE_FILENAME;
+import static com.github.rodm.teamcity.dsl.TeamCityDSLPlugin.DSL_THREAD_DUMP_FILENAME;
 
 public class GenerateConfigurationTask extends DefaultTask {
 
     private static final String CONFIG_MESSAGE = "Generate TeamCity configurations in {} format from {} to {}";
 
+    private static final String PROFILE_SETTINGS = "dsl-profile.jfc";
+
+    private static final String CACHE_DIR = "caches/teamcity-dsl";
+
+    private static final long TIMEOUT_GRACE_PERIOD = 30;
+
+    private static final String PEAK_MEMORY_FILENAME = "peak-memory.txt";
+
+    private static final String MEMORY_HISTORY_FILENAME = "memory-history.properties";
+
     private PropertyState<String> version = getProject().property(String.class);
 
     private PropertyState<String> format = getProject().property(String.class);
@@ -55,45 +80,286 @@ public class GenerateConfigurationTask extends DefaultTask {
 
     private PropertyState<File> destDir = getProject().property(File.class);
 
+    private PropertyState<String> shard = getProject().property(String.class);
+
+    private PropertyState<Boolean> profile = getProject().property(Boolean.class);
+
+    private PropertyState<String> revision = getProject().property(String.class);
+
+    private PropertyState<Integer> timeout = getProject().property(Integer.class);
+
+    private PropertyState<Integer> stallTimeout = getProject().property(Integer.class);
+
+    private PropertyState<Integer> maxGeneratorMemory = getProject().property(Integer.class);
+
     public GenerateConfigurationTask() {
         setGroup("TeamCity");
+        getOutputs().upToDateWhen(task -> getRevision() == null);
     }
 
     @TaskAction
     void generate() {
-        ExecResult result = getProject().javaexec(new Action<JavaExecSpec>() {
-            @Override
-            public void execute(JavaExecSpec spec) {
-                getLogger().lifecycle(CONFIG_MESSAGE, getFormat(), formatPath(getBaseDir()), formatPath(getDestDir()));
-                getLogger().info("Using main class {}", getMainClass());
-
-                Configuration configuration = getProject().getConfigurations().getAt(CONFIGURATION_NAME);
-                String toolPath = configuration.getAsPath();
-                spec.setIgnoreExitValue(true);
-                spec.setClasspath(createToolClasspath(configuration));
-                spec.setMain(getMainClass());
-                spec.args(getFormat(), getBaseDir().getAbsolutePath(), getDestDir().getAbsolutePath(), toolPath);
-            }
+        File settingsDir = createSettingsDir();
+        getLogger().lifecycle(CONFIG_MESSAGE, getFormat(), formatPath(getBaseDir()), formatPath(getDestDir()));
+        getLogger().info("Using main class {}", getMainClass());
+
+        Configuration configuration = getProject().getConfigurations().getAt(CONFIGURATION_NAME);
+        File threadDumpFile = new File(getDestDir(), DSL_THREAD_DUMP_FILENAME);
+        File peakMemoryFile = new File(getTemporaryDir(), PEAK_MEMORY_FILENAME);
+        getProject().delete(peakMemoryFile);
+        GeneratorMemoryScheduler scheduler = GeneratorMemoryScheduler.forBuild(getProject().getGradle());
+        long heap = getMaxGeneratorMemory() > 0 ? estimateHeap(scheduler) : 0;
+
+        List<String> command = new ArrayList<>();
+        command.add(getJavaExecutable());
+        if (heap > 0) {
+            command.add("-Xmx" + heap + "m");
+            command.add("-XX:+ExitOnOutOfMemoryError");
+        }
+        if (isProfile()) {
+            command.addAll(createProfileJvmArgs());
+        }
+        command.add("-D" + GeneratorLauncher.TIMEOUT_PROPERTY + "=" + getTimeout());
+        command.add("-D" + GeneratorLauncher.STALL_TIMEOUT_PROPERTY + "=" + getStallTimeout());
+        command.add("-D" + GeneratorLauncher.THREAD_DUMP_PROPERTY + "=" + threadDumpFile.getAbsolutePath());
+        command.add("-D" + GeneratorLauncher.PEAK_MEMORY_PROPERTY + "=" + peakMemoryFile.getAbsolutePath());
+        command.add("-cp");
+        command.add(createToolClasspath(configuration).getAsPath());
+        command.add(GeneratorLauncher.class.getName());
+        command.add(getMainClass());
+        command.add(getFormat());
+        command.add(settingsDir.getAbsolutePath());
+        command.add(getDestDir().getAbsolutePath());
+        command.add(configuration.getAsPath());
 
-            private FileCollection createToolClasspath(Configuration teamcityClasspath) {
-                File toolJar = new File(getClass().getProtectionDomain().getCodeSource().getLocation().getPath());
-                List<Object> classPath = new ArrayList<>();
-                classPath.add(toolJar);
-                classPath.add(teamcityClasspath);
-                return getProject().files(classPath);
+        long memory = heap > 0 ? heap + GeneratorMemoryScheduler.JVM_OVERHEAD : 0;
+        int exitValue;
+        try {
+            exitValue = runGenerator(command, scheduler, memory);
+        } catch (BuildCancelledException e) {
+            if (threadDumpFile.isFile()) {
+                throw new BuildCancelledException(e.getMessage() + " See the thread dump at: " + asClickableFileUrl(threadDumpFile), e);
             }
-        });
-        if (result.getExitValue() != 0) {
+            throw e;
+        }
+        recordPeakMemory(scheduler, peakMemoryFile, heap, exitValue);
+        if (isProfile()) {
+            summarizeProfile();
+        }
+        if (heap > 0 && exitValue == GeneratorLauncher.OUT_OF_MEMORY_EXIT_VALUE) {
+            throw new GradleException("Process generating TeamCity configurations ran out of memory with a maximum heap of "
+                    + heap + " MB, the next run uses a larger heap.");
+        }
+        if (exitValue == GeneratorLauncher.TIMEOUT_EXIT_VALUE) {
+            String message = "Process generating TeamCity configurations did not complete.";
+            if (threadDumpFile.isFile()) {
+                message += " See the thread dump at: " + asClickableFileUrl(threadDumpFile);
+            }
+            throw new GradleException(message);
+        }
+        if (exitValue != 0) {
             String message = "Process generating TeamCity configurations failed. See the report at: ";
             String dslReportUrl = asClickableFileUrl(new File(getDestDir(), DSL_EXCEPTION_FILENAME));
             throw new GradleException(message + dslReportUrl);
         }
     }
 
+    private int runGenerator(List<String> command, GeneratorMemoryScheduler scheduler, long memory) {
+        long processTimeout = getTimeout() > 0 ? TimeUnit.SECONDS.toMillis(getTimeout() + TIMEOUT_GRACE_PERIOD) : 0;
+        if (memory == 0) {
+            return createGeneratorProcess(command).run(processTimeout);
+        }
+        try {
+            scheduler.acquire(memory, getMaxGeneratorMemory(), getLogger());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildCancelledException("Generating TeamCity configurations was cancelled.", e);
+        }
+        try {
+            return createGeneratorProcess(command).run(processTimeout);
+        } finally {
+            scheduler.release(memory);
+        }
+    }
+
+    private long estimateHeap(GeneratorMemoryScheduler scheduler) {
+        long heap = scheduler.estimateHeap(getMemoryHistoryFile(), getMemoryHistoryKey(), getLogger());
+        return heap > 0 ? heap : GeneratorMemoryScheduler.DEFAULT_HEAP;
+    }
+
+    private GeneratorProcess createGeneratorProcess(List<String> command) {
+        BuildCancellationToken cancellationToken = ((ProjectInternal) getProject()).getServices().get(BuildCancellationToken.class);
+        return new GeneratorProcess(command, getProject().getProjectDir(), cancellationToken, getLogger());
+    }
+
+    private void recordPeakMemory(GeneratorMemoryScheduler scheduler, File peakMemoryFile, long heap, int exitValue) {
+        if (heap > 0 && exitValue == GeneratorLauncher.OUT_OF_MEMORY_EXIT_VALUE) {
+            scheduler.recordPeak(getMemoryHistoryFile(), getMemoryHistoryKey(), heap, true, getLogger());
+            return;
+        }
+        if (!peakMemoryFile.isFile()) {
+            return;
+        }
+        try {
+            long peak = Long.parseLong(new String(Files.readAllBytes(peakMemoryFile.toPath()), StandardCharsets.UTF_8).trim());
+            getLogger().info("Generator retained a peak heap of {} MB", peak);
+            scheduler.recordPeak(getMemoryHistoryFile(), getMemoryHistoryKey(), peak, exitValue != 0, getLogger());
+        } catch (IOException | NumberFormatException e) {
+            getLogger().warn("Unable to read generator peak memory from {}: {}", peakMemoryFile, e.toString());
+        }
+    }
+
+    private File getMemoryHistoryFile() {
+        return new File(getCacheDir(), MEMORY_HISTORY_FILENAME);
+    }
+
+    private String getMemoryHistoryKey() {
+        return getBaseDir().getAbsolutePath() + (getShard() == null ? "" : "#" + getShard());
+    }
+
+    private FileCollection createToolClasspath(Configuration teamcityClasspath) {
+        File toolJar = new File(GeneratorLauncher.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+        List<Object> classPath = new ArrayList<>();
+        classPath.add(toolJar);
+        classPath.add(teamcityClasspath);
+        return getProject().files(classPath);
+    }
+
+    private static String getJavaExecutable() {
+        String executable = File.separatorChar == '\\' ? "java.exe" : "java";
+        return new File(new File(System.getProperty("java.home"), "bin"), executable).getAbsolutePath();
+    }
+
+    private File createSettingsDir() {
+        File settingsDir = getRevision() == null ? getBaseDir() : createRevisionDir(getRevision());
+        return getShard() == null ? settingsDir : createShardDir(ShardSpec.parse(getShard()), settingsDir);
+    }
+
+    /**
+     * Writes the files of {@code baseDir} at the given revision to a temporary directory. The files are read
+     * from the object store with {@code git ls-tree} and {@code git cat-file}, so they are written exactly as
+     * committed, unlike {@code git archive} that applies the export attributes of {@code .gitattributes}.
+     */
+    File createRevisionDir(String revision) {
+        File revisionDir = new File(getTemporaryDir(), "revision");
+        getProject().delete(revisionDir);
+        getLogger().lifecycle("Using settings from revision {}", revision);
+
+        String prefix = new String(git(null, "rev-parse", "--show-prefix"), StandardCharsets.UTF_8).trim();
+        String tree = new String(git(null, "ls-tree", "-r", "-z", "--full-tree", revision + ":" + prefix), StandardCharsets.UTF_8);
+        List<String> paths = new ArrayList<>();
+        StringBuilder objects = new StringBuilder();
+        for (String entry : tree.split("\0")) {
+            int tab = entry.indexOf('\t');
+            String[] fields = tab < 0 ? new String[0] : entry.substring(0, tab).split(" ");
+            if (fields.length == 3 && "blob".equals(fields[1])) {
+                paths.add(entry.substring(tab + 1));
+                objects.append(fields[2]).append('\n');
+            }
+        }
+
+        byte[] contents = git(objects.toString().getBytes(StandardCharsets.UTF_8), "cat-file", "--batch");
+        int offset = 0;
+        for (String path : paths) {
+            int headerEnd = offset;
+            while (contents[headerEnd] != '\n') {
+                headerEnd++;
+            }
+            String[] header = new String(contents, offset, headerEnd - offset, StandardCharsets.UTF_8).split(" ");
+            int size = Integer.parseInt(header[2]);
+            File file = new File(revisionDir, path);
+            file.getParentFile().mkdirs();
+            try {
+                Files.write(file.toPath(), Arrays.copyOfRange(contents, headerEnd + 1, headerEnd + 1 + size));
+            } catch (IOException e) {
+                throw new GradleException("Failed to write settings file " + file, e);
+            }
+            offset = headerEnd + 1 + size + 1;
+        }
+        return revisionDir;
+    }
+
+    private byte[] git(byte[] input, String... args) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        ExecResult result = getProject().exec(spec -> {
+            spec.setWorkingDir(getBaseDir());
+            spec.setExecutable("git");
+            spec.args((Object[]) args);
+            if (input != null) {
+                spec.setStandardInput(new ByteArrayInputStream(input));
+            }
+            spec.setStandardOutput(output);
+            spec.setErrorOutput(error);
+            spec.setIgnoreExitValue(true);
+        });
+        if (result.getExitValue() != 0) {
+            throw new GradleException("Failed to read settings from revision " + getRevision() + ": " + error.toString().trim());
+        }
+        return output.toByteArray();
+    }
+
+    private File createShardDir(ShardSpec shardSpec, File settingsDir) {
+        File shardDir = new File(getTemporaryDir(), "shard");
+        getProject().delete(shardDir);
+        List<File> projectDirs = shardSpec.select(settingsDir);
+        getLogger().lifecycle("Generating shard {} with {} project(s)", shardSpec, projectDirs.size());
+        getProject().copy(spec -> {
+            spec.into(shardDir);
+            spec.from(settingsDir, copySpec -> copySpec.include(element -> !element.isDirectory() && element.getRelativePath().getSegments().length == 1));
+            for (File projectDir : projectDirs) {
+                spec.from(projectDir, copySpec -> copySpec.into(projectDir.getName()));
+            }
+        });
+        return shardDir;
+    }
+
+    private List<String> createProfileJvmArgs() {
+        if (!ProfileSummary.isSupported()) {
+            String javaVersion = System.getProperty("java.version");
+            throw new GradleException("Profiling the generator requires a Java runtime with Flight Recorder, Java 11 or later or OpenJDK 8u262 or later, the build is running with Java " + javaVersion + ".");
+        }
+        File settings = new File(getTemporaryDir(), PROFILE_SETTINGS);
+        try (InputStream in = getClass().getResourceAsStream(PROFILE_SETTINGS)) {
+            Files.copy(in, settings.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new GradleException("Failed to create Flight Recorder settings file " + settings, e);
+        }
+        File recording = new File(getDestDir(), DSL_PROFILE_FILENAME);
+        getLogger().lifecycle("Profiling generator, recording to {}", asClickableFileUrl(recording));
+
+        List<String> jvmArgs = new ArrayList<>();
+        jvmArgs.add("-XX:StartFlightRecording=settings=" + settings.getAbsolutePath()
+                + ",filename=" + recording.getAbsolutePath() + ",dumponexit=true");
+        return jvmArgs;
+    }
+
+    private void summarizeProfile() {
+        File recording = new File(getDestDir(), DSL_PROFILE_FILENAME);
+        if (!recording.isFile()) {
+            getLogger().warn("Flight Recorder recording {} was not created.", recording);
+            return;
+        }
+        try {
+            ProfileSummary.read(recording).log(getLogger());
+        } catch (ReflectiveOperationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            getLogger().warn("Unable to summarize Flight Recorder recording {}: {}", recording, cause.toString());
+        }
+    }
+
+    private File getCacheDir() {
+        return new File(getProject().getGradle().getGradleUserHomeDir(), CACHE_DIR);
+    }
+
     private String getMainClass() {
-        if (getVersion().startsWith("10.")) {
+        return getMainClass(getVersion());
+    }
+
+    static String getMainClass(String version) {
+        if (version.startsWith("10.")) {
             return com.github.rodm.teamcity.dsl.v10.GenerateConfigurationMain.class.getName();
-        } else if (getVersion().startsWith("2017.1")) {
+        } else if (version.startsWith("2017.1")) {
             return com.github.rodm.teamcity.dsl.v2017.GenerateConfigurationMain.class.getName();
         } else {
             return com.github.rodm.teamcity.dsl.v2017_2.GenerateConfigurationMain.class.getName();
@@ -169,4 +435,78 @@ public class GenerateConfigurationTask extends DefaultTask {
     public void setDestDir(Provider<File> destDir) {
         this.destDir.set(destDir);
     }
+
+    @Input
+    @Optional
+    public String getShard() {
+        return shard.isPresent() ? shard.get() : null;
+    }
+
+    @Option(option = "shard", description = "Generates only the given shard of the settings, for example 3/8.")
+    public void setShard(String shard) {
+        this.shard.set(shard);
+    }
+
+    @Input
+    public boolean isProfile() {
+        return profile.get();
+    }
+
+    public void setProfile(boolean profile) {
+        this.profile.set(profile);
+    }
+
+    public void setProfile(Provider<Boolean> profile) {
+        this.profile.set(profile);
+    }
+
+    @Input
+    @Optional
+    public String getRevision() {
+        return revision.isPresent() ? revision.get() : null;
+    }
+
+    @Option(option = "revision", description = "Generates the settings from the given git revision.")
+    public void setRevision(String revision) {
+        this.revision.set(revision);
+    }
+
+    @Internal
+    public int getTimeout() {
+        return timeout.get();
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout.set(timeout);
+    }
+
+    public void setTimeout(Provider<Integer> timeout) {
+        this.timeout.set(timeout);
+    }
+
+    @Internal
+    public int getStallTimeout() {
+        return stallTimeout.get();
+    }
+
+    public void setStallTimeout(int stallTimeout) {
+        this.stallTimeout.set(stallTimeout);
+    }
+
+    public void setStallTimeout(Provider<Integer> stallTimeout) {
+        this.stallTimeout.set(stallTimeout);
+    }
+
+    @Internal
+    public int getMaxGeneratorMemory() {
+        return maxGeneratorMemory.get();
+    }
+
+    public void setMaxGeneratorMemory(int maxGeneratorMemory) {
+        this.maxGeneratorMemory.set(maxGeneratorMemory);
+    }
+
+    public void setMaxGeneratorMemory(Provider<Integer> maxGeneratorMemory) {
+        this.maxGeneratorMemory.set(maxGeneratorMemory);
+    }
 }
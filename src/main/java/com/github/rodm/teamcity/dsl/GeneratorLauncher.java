@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a version specific generator main class in the generator process, with a watchdog thread that
+ * writes a thread dump and stops the process when the generator exceeds its timeout or stops making
+ * progress, with a thread that stops the process when the Gradle process that started it goes away or
+ * writes a thread dump and stops the process when Gradle requests it on the process input, and records
+ * the peak heap retained by the process after garbage collection.
+ * This class runs outside of Gradle and must only use the JDK.
+ */
+public class GeneratorLauncher {
+
+    static final String TIMEOUT_PROPERTY = "teamcity.dsl.timeout";
+    static final String STALL_TIMEOUT_PROPERTY = "teamcity.dsl.stallTimeout";
+    static final String THREAD_DUMP_PROPERTY = "teamcity.dsl.threadDump";
+    static final String PEAK_MEMORY_PROPERTY = "teamcity.dsl.peakMemory";
+
+    static final int TIMEOUT_EXIT_VALUE = 124;
+
+    // exit value of a JVM started with -XX:+ExitOnOutOfMemoryError that runs out of heap
+    static final int OUT_OF_MEMORY_EXIT_VALUE = 3;
+
+    static final int THREAD_DUMP_REQUEST = 'D';
+
+    private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+    public static void main(String[] args) throws Throwable {
+        long timeout = TimeUnit.SECONDS.toMillis(Long.getLong(TIMEOUT_PROPERTY, 0));
+        long stallTimeout = TimeUnit.SECONDS.toMillis(Long.getLong(STALL_TIMEOUT_PROPERTY, 0));
+        String threadDump = System.getProperty(THREAD_DUMP_PROPERTY);
+        String peakMemory = System.getProperty(PEAK_MEMORY_PROPERTY);
+
+        if (peakMemory != null) {
+            MemoryMonitor monitor = new MemoryMonitor();
+            monitor.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> monitor.writePeak(new File(peakMemory))));
+        }
+
+        if (timeout > 0 || stallTimeout > 0) {
+            startDaemon("generator-watchdog", new Watchdog(timeout, stallTimeout, threadDump, System.currentTimeMillis()));
+        }
+        startDaemon("generator-parent-monitor", () -> monitorParent(threadDump));
+
+        Method main = Class.forName(args[0]).getMethod("main", String[].class);
+        try {
+            main.invoke(null, (Object) Arrays.copyOfRange(args, 1, args.length));
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void startDaemon(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void monitorParent(String threadDump) {
+        try {
+            int request;
+            while ((request = System.in.read()) != -1) {
+                if (request == THREAD_DUMP_REQUEST) {
+                    stop("Generator was stopped by the Gradle build.", threadDump);
+                }
+            }
+        } catch (IOException ignore) {
+        }
+        System.out.println("Stopping generator, the Gradle build has stopped.");
+        Runtime.getRuntime().halt(1);
+    }
+
+    private static void stop(String reason, String threadDump) {
+        System.out.println(reason);
+        if (threadDump != null) {
+            writeThreadDump(reason, new File(threadDump));
+        }
+        Runtime.getRuntime().halt(TIMEOUT_EXIT_VALUE);
+    }
+
+    private static void writeThreadDump(String reason, File file) {
+        file.getParentFile().mkdirs();
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println(reason);
+            writer.println();
+            for (ThreadInfo info : ManagementFactory.getThreadMXBean().dumpAllThreads(true, true)) {
+                writer.println("\"" + info.getThreadName() + "\" id=" + info.getThreadId() + " " + info.getThreadState());
+                LockInfo lock = info.getLockInfo();
+                if (lock != null) {
+                    writer.println("    waiting on " + lock + (info.getLockOwnerName() != null ? " owned by \"" + info.getLockOwnerName() + "\"" : ""));
+                }
+                for (StackTraceElement element : info.getStackTrace()) {
+                    writer.println("    at " + element);
+                }
+                writer.println();
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Unable to write thread dump " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Records the heap in use after each garbage collection, as reported by the collector notifications.
+     * The pool collection usage is not used because it is only updated when a pool itself is collected, and
+     * with G1 the old generation is not collected by young collections, so most of the retained heap would
+     * not be counted. If there was no garbage collection the heap in use at exit is recorded.
+     */
+    static class MemoryMonitor implements NotificationListener {
+
+        private final Set<String> heapPools = new HashSet<>();
+
+        private long peak;
+
+        void start() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                CompositeData data = (CompositeData) notification.getUserData();
+                record(GarbageCollectionNotificationInfo.from(data).getGcInfo().getMemoryUsageAfterGc());
+            }
+        }
+
+        synchronized void record(Map<String, MemoryUsage> usageAfterGc) {
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> entry : usageAfterGc.entrySet()) {
+                if (heapPools.contains(entry.getKey())) {
+                    used += entry.getValue().getUsed();
+                }
+            }
+            peak = Math.max(peak, used);
+        }
+
+        synchronized void writePeak(File file) {
+            long retained = peak > 0 ? peak : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            try (PrintWriter writer = new PrintWriter(file)) {
+                writer.println(retained / (1024 * 1024));
+            } catch (FileNotFoundException e) {
+                System.out.println("Unable to write peak memory " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    static class Watchdog implements Runnable {
+
+        private final long timeout;
+        private final long stallTimeout;
+        private final String threadDump;
+        private final long start;
+
+        private long lastProgress;
+        private Map<Long, StackTraceElement[]> lastStacks = new HashMap<>();
+
+        Watchdog(long timeout, long stallTimeout, String threadDump, long start) {
+            this.timeout = timeout;
+            this.stallTimeout = stallTimeout;
+            this.threadDump = threadDump;
+            this.start = start;
+            this.lastProgress = start;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(CHECK_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                String reason = check(System.currentTimeMillis(), hasProgressed(captureStacks()));
+                if (reason != null) {
+                    stop(reason, threadDump);
+                }
+            }
+        }
+
+        /**
+         * Returns the reason for stopping the generator at the given time, or {@code null} if it should continue.
+         */
+        String check(long now, boolean progressed) {
+            if (progressed) {
+                lastProgress = now;
+            }
+            if (timeout > 0 && now - start > timeout) {
+                return "Generator did not complete within " + TimeUnit.MILLISECONDS.toSeconds(timeout) + " seconds.";
+            }
+            if (stallTimeout > 0 && now - lastProgress > stallTimeout) {
+                return "Generator made no progress for " + TimeUnit.MILLISECONDS.toSeconds(stallTimeout) + " seconds.";
+            }
+            return null;
+        }
+
+        boolean hasProgressed(Map<Long, StackTraceElement[]> stacks) {
+            boolean progressed = stacks.size() != lastStacks.size();
+            for (Map.Entry<Long, StackTraceElement[]> entry : stacks.entrySet()) {
+                progressed = progressed || !Arrays.equals(entry.getValue(), lastStacks.get(entry.getKey()));
+            }
+            lastStacks = stacks;
+            return progressed;
+        }
+
+        private static Map<Long, StackTraceElement[]> captureStacks() {
+            Map<Long, StackTraceElement[]> stacks = new HashMap<>();
+            for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+                if (!entry.getKey().isDaemon()) {
+                    stacks.put(entry.getKey().getId(), entry.getValue());
+                }
+            }
+            return stacks;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.provider.PropertyState;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import static com.github.rodm.teamcity.dsl.TeamCityDSLPlugin.CONFIGURATION_NAME;
+
+/**
+ * Writes the lock file used by {@link StandaloneGenerator} to run the generator without Gradle. The
+ * file records the generator main class and the resolved TeamCity DSL classpath.
+ */
+public class GeneratorLockTask extends DefaultTask {
+
+    static final String MAIN_CLASS_PROPERTY = "mainClass";
+    static final String CLASSPATH_PROPERTY = "classpath";
+
+    private PropertyState<String> version = getProject().property(String.class);
+
+    private PropertyState<File> lockFile = getProject().property(File.class);
+
+    public GeneratorLockTask() {
+        setGroup("TeamCity");
+        setDescription("Writes the lock file used to run the TeamCity DSL generator without Gradle.");
+    }
+
+    @TaskAction
+    void writeLockFile() {
+        Properties lock = new Properties();
+        lock.setProperty(MAIN_CLASS_PROPERTY, GenerateConfigurationTask.getMainClass(getVersion()));
+        lock.setProperty(CLASSPATH_PROPERTY, getClasspath().getAsPath());
+
+        File file = getLockFile();
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            lock.store(out, "TeamCity DSL generator " + getVersion());
+        } catch (IOException e) {
+            throw new GradleException("Failed to write generator lock file " + file, e);
+        }
+    }
+
+    @InputFiles
+    public FileCollection getClasspath() {
+        return getProject().getConfigurations().getAt(CONFIGURATION_NAME);
+    }
+
+    @Input
+    public String getVersion() {
+        return version.get();
+    }
+
+    public void setVersion(Provider<String> version) {
+        this.version.set(version);
+    }
+
+    @OutputFile
+    public File getLockFile() {
+        return lockFile.get();
+    }
+
+    public void setLockFile(File lockFile) {
+        this.lockFile.set(lockFile);
+    }
+}
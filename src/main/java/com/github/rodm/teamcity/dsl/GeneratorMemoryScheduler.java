@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+
+/**
+ * Shared by the generate configuration tasks of a build to limit the memory used by generator processes
+ * running at the same time. The heap of each generator is estimated from the peak heap used by earlier
+ * runs for the same settings, and a generator is only started while the memory reserved by the running
+ * generators stays under the limit. A generator is always started when no other generator is running.
+ */
+class GeneratorMemoryScheduler {
+
+    static final long DEFAULT_HEAP = 1024;
+    static final long MINIMUM_HEAP = 512;
+    static final long JVM_OVERHEAD = 256;
+
+    private static final Map<Gradle, GeneratorMemoryScheduler> schedulers = new WeakHashMap<>();
+
+    private long reserved;
+
+    private int running;
+
+    static synchronized GeneratorMemoryScheduler forBuild(Gradle gradle) {
+        return schedulers.computeIfAbsent(gradle, key -> new GeneratorMemoryScheduler());
+    }
+
+    /**
+     * Returns the heap in MB estimated from the recorded peak heap, or 0 if there is no usable history.
+     */
+    synchronized long estimateHeap(File historyFile, String key, Logger logger) {
+        String peak;
+        try {
+            peak = loadHistory(historyFile).getProperty(key);
+        } catch (IOException e) {
+            logger.warn("Unable to read generator memory history {}: {}", historyFile, e.toString());
+            return 0;
+        }
+        if (peak == null) {
+            return 0;
+        }
+        try {
+            return Math.max(MINIMUM_HEAP, Long.parseLong(peak.trim()) * 3 / 2);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid peak heap '{}' in generator memory history {}", peak, historyFile);
+            return 0;
+        }
+    }
+
+    /**
+     * Records the peak heap in MB, replacing the history file atomically so concurrent builds never read
+     * a partially written file. The peak recorded for a failed run only replaces a lower peak, a run that
+     * failed may have stopped before reaching the heap it needs.
+     */
+    synchronized void recordPeak(File historyFile, String key, long peak, boolean failed, Logger logger) {
+        File tempFile = null;
+        try {
+            Properties history = loadHistory(historyFile);
+            long recorded = failed ? Math.max(peak, parsePeak(history.getProperty(key))) : peak;
+            history.setProperty(key, Long.toString(recorded));
+            historyFile.getParentFile().mkdirs();
+            tempFile = File.createTempFile(historyFile.getName(), ".tmp", historyFile.getParentFile());
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                history.store(out, "Peak heap in MB used by the TeamCity DSL generator");
+            }
+            Files.move(tempFile.toPath(), historyFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write generator memory history {}: {}", historyFile, e.toString());
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    synchronized void acquire(long memory, long limit, Logger logger) throws InterruptedException {
+        if (running > 0 && reserved + memory > limit) {
+            logger.lifecycle("Waiting for {} MB of generator memory, {} MB of {} MB in use", memory, reserved, limit);
+            while (running > 0 && reserved + memory > limit) {
+                wait();
+            }
+        }
+        reserved += memory;
+        running++;
+    }
+
+    synchronized void release(long memory) {
+        reserved -= memory;
+        running--;
+        notifyAll();
+    }
+
+    private static long parsePeak(String peak) {
+        try {
+            return peak == null ? 0 : Long.parseLong(peak.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Properties loadHistory(File historyFile) throws IOException {
+        Properties history = new Properties();
+        if (historyFile.isFile()) {
+            try (InputStream in = new FileInputStream(historyFile)) {
+                history.load(in);
+            }
+        }
+        return history;
+    }
+}
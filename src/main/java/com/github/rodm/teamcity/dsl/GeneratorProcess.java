@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import org.gradle.api.BuildCancelledException;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.initialization.BuildCancellationToken;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.THREAD_DUMP_REQUEST;
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.TIMEOUT_EXIT_VALUE;
+
+/**
+ * Runs the generator process, forwarding its output to the task logger. The process is asked to write a
+ * thread dump and stop if it runs past its deadline, if the build is cancelled or if the task thread is
+ * interrupted, and is destroyed if it does not stop shortly after or if the Gradle process exits first.
+ */
+class GeneratorProcess {
+
+    private static final long STOP_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final List<String> command;
+
+    private final File workingDir;
+
+    private final BuildCancellationToken cancellationToken;
+
+    private final Logger logger;
+
+    GeneratorProcess(List<String> command, File workingDir, BuildCancellationToken cancellationToken, Logger logger) {
+        this.command = command;
+        this.workingDir = workingDir;
+        this.cancellationToken = cancellationToken;
+        this.logger = logger;
+    }
+
+    int run(long timeoutMillis) {
+        if (cancellationToken.isCancellationRequested()) {
+            throw new BuildCancelledException("Generating TeamCity configurations was cancelled.");
+        }
+        logger.debug("Starting generator process: {}", command);
+        Process process;
+        try {
+            process = new ProcessBuilder(command).directory(workingDir).redirectErrorStream(true).start();
+        } catch (IOException e) {
+            throw new GradleException("Failed to start process generating TeamCity configurations", e);
+        }
+        Thread shutdownHook = new Thread(process::destroyForcibly);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        Thread outputForwarder = new Thread(() -> forwardOutput(process), "generator-output");
+        outputForwarder.start();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Runnable cancellation = () -> {
+            cancelled.set(true);
+            stop(process);
+        };
+        if (cancellationToken.addCallback(cancellation)) {
+            cancellation.run();
+        }
+        try {
+            boolean completed = true;
+            if (timeoutMillis > 0) {
+                completed = process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS);
+            } else {
+                process.waitFor();
+            }
+            if (cancelled.get()) {
+                throw new BuildCancelledException("Generating TeamCity configurations was cancelled.");
+            }
+            if (!completed) {
+                logger.warn("Process generating TeamCity configurations did not stop, stopping it.");
+                stop(process);
+                return TIMEOUT_EXIT_VALUE;
+            }
+            outputForwarder.join();
+            return process.exitValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop(process);
+            throw new BuildCancelledException("Generating TeamCity configurations was cancelled.", e);
+        } finally {
+            cancellationToken.removeCallback(cancellation);
+            removeShutdownHook(shutdownHook);
+        }
+    }
+
+    /**
+     * Asks the launcher to write a thread dump and exit, and destroys the process if it has not exited
+     * after a few seconds. An interrupt of the calling thread is cleared while waiting and restored after.
+     */
+    private void stop(Process process) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            OutputStream input = process.getOutputStream();
+            input.write(THREAD_DUMP_REQUEST);
+            input.flush();
+            process.waitFor(STOP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            logger.debug("Failed to request a thread dump from the generator process", e);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            process.destroyForcibly();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void removeShutdownHook(Thread shutdownHook) {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignore) {
+            // the Gradle process is already shutting down
+        }
+    }
+
+    private void forwardOutput(Process process) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                logger.quiet(line);
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to read generator process output", e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.provider.PropertyState;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.rodm.teamcity.dsl.TeamCityDSLPlugin.DSL_EXCEPTION_FILENAME;
+
+public class MergeConfigurationTask extends DefaultTask {
+
+    private FileCollection shardDirs = getProject().files();
+
+    private PropertyState<File> destDir = getProject().property(File.class);
+
+    public MergeConfigurationTask() {
+        setGroup("TeamCity");
+    }
+
+    @TaskAction
+    void merge() {
+        Path destPath = getDestDir().toPath().toAbsolutePath().normalize();
+        Map<String, File> mergedFiles = new HashMap<>();
+        for (File shardDir : getShardDirs()) {
+            if (shardDir.toPath().toAbsolutePath().normalize().startsWith(destPath)) {
+                throw new GradleException("Shard output directory " + shardDir + " must not be inside the destination directory " + getDestDir() + ".");
+            }
+            if (!shardDir.isDirectory()) {
+                throw new GradleException("Shard output directory " + shardDir + " does not exist.");
+            }
+            if (new File(shardDir, DSL_EXCEPTION_FILENAME).exists()) {
+                throw new GradleException("Shard output directory " + shardDir + " contains " + DSL_EXCEPTION_FILENAME + ".");
+            }
+            getProject().fileTree(shardDir).visit(details -> {
+                if (!details.isDirectory()) {
+                    checkDuplicate(mergedFiles, details, shardDir);
+                }
+            });
+        }
+
+        getProject().delete(getDestDir());
+        getProject().copy(spec -> {
+            spec.into(getDestDir());
+            spec.from(getShardDirs());
+        });
+        getLogger().lifecycle("Merged {} file(s) from {} shard(s)", mergedFiles.size(), getShardDirs().getFiles().size());
+    }
+
+    private static void checkDuplicate(Map<String, File> mergedFiles, FileVisitDetails details, File shardDir) {
+        String path = details.getRelativePath().getPathString();
+        File previous = mergedFiles.put(path, shardDir);
+        if (previous != null) {
+            throw new GradleException("File " + path + " was generated by more than one shard: " + previous + " and " + shardDir);
+        }
+    }
+
+    @InputFiles
+    public FileCollection getShardDirs() {
+        return shardDirs;
+    }
+
+    public void setShardDirs(Object... shardDirs) {
+        this.shardDirs = getProject().files(shardDirs);
+    }
+
+    @OutputDirectory
+    public File getDestDir() {
+        return destDir.get();
+    }
+
+    public void setDestDir(File destDir) {
+        this.destDir.set(destDir);
+    }
+}
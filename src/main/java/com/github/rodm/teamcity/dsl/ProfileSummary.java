@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Summarises a Flight Recorder recording of the generator process, reporting the allocation sites
+ * with the most bytes allocated and the methods most often seen executing. The recording is read
+ * using the {@code jdk.jfr.consumer} API through reflection, so the plugin can still be built with Java 8.
+ */
+class ProfileSummary {
+
+    private static final int TOP_COUNT = 10;
+
+    private final Map<String, Long> allocations = new HashMap<>();
+
+    private final Map<String, Long> samples = new HashMap<>();
+
+    private final Method getEventType;
+    private final Method getEventTypeName;
+    private final Method getLong;
+    private final Method getStackTrace;
+    private final Method getFrames;
+    private final Method getFrameMethod;
+    private final Method getMethodType;
+    private final Method getMethodName;
+    private final Method getClassName;
+
+    private ProfileSummary() throws ReflectiveOperationException {
+        Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        Class<?> recordedMethod = Class.forName("jdk.jfr.consumer.RecordedMethod");
+        getEventType = recordedEvent.getMethod("getEventType");
+        getEventTypeName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+        getLong = recordedEvent.getMethod("getLong", String.class);
+        getStackTrace = recordedEvent.getMethod("getStackTrace");
+        getFrames = Class.forName("jdk.jfr.consumer.RecordedStackTrace").getMethod("getFrames");
+        getFrameMethod = Class.forName("jdk.jfr.consumer.RecordedFrame").getMethod("getMethod");
+        getMethodType = recordedMethod.getMethod("getType");
+        getMethodName = recordedMethod.getMethod("getName");
+        getClassName = Class.forName("jdk.jfr.consumer.RecordedClass").getMethod("getName");
+    }
+
+    /**
+     * Returns true if the Java runtime provides Flight Recorder, Java 11 or later and OpenJDK 8u262 or later.
+     */
+    static boolean isSupported() {
+        try {
+            Class.forName("jdk.jfr.Recording");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    static ProfileSummary read(File recording) throws ReflectiveOperationException {
+        ProfileSummary summary = new ProfileSummary();
+        Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+        for (Object event : (List<?>) readAllEvents.invoke(null, recording.toPath())) {
+            summary.add(event);
+        }
+        return summary;
+    }
+
+    private void add(Object event) throws ReflectiveOperationException {
+        String name = (String) getEventTypeName.invoke(getEventType.invoke(event));
+        if ("jdk.ObjectAllocationInNewTLAB".equals(name)) {
+            add(allocations, event, (Long) getLong.invoke(event, "tlabSize"));
+        } else if ("jdk.ObjectAllocationOutsideTLAB".equals(name)) {
+            add(allocations, event, (Long) getLong.invoke(event, "allocationSize"));
+        } else if ("jdk.ExecutionSample".equals(name)) {
+            add(samples, event, 1);
+        }
+    }
+
+    private void add(Map<String, Long> counts, Object event, long value) throws ReflectiveOperationException {
+        Object stackTrace = getStackTrace.invoke(event);
+        if (stackTrace == null) {
+            return;
+        }
+        List<?> frames = (List<?>) getFrames.invoke(stackTrace);
+        if (frames.isEmpty()) {
+            return;
+        }
+        Object method = getFrameMethod.invoke(frames.get(0));
+        String location = getClassName.invoke(getMethodType.invoke(method)) + "." + getMethodName.invoke(method);
+        counts.merge(location, value, Long::sum);
+    }
+
+    void log(Logger logger) {
+        logger.lifecycle("Top allocation sites:");
+        for (Map.Entry<String, Long> entry : getTopAllocationSites()) {
+            logger.lifecycle("  {} KB  {}", entry.getValue() / 1024, entry.getKey());
+        }
+        logger.lifecycle("Hottest methods:");
+        for (Map.Entry<String, Long> entry : getHottestMethods()) {
+            logger.lifecycle("  {} samples  {}", entry.getValue(), entry.getKey());
+        }
+    }
+
+    List<Map.Entry<String, Long>> getTopAllocationSites() {
+        return top(allocations);
+    }
+
+    List<Map.Entry<String, Long>> getHottestMethods() {
+        return top(samples);
+    }
+
+    private static List<Map.Entry<String, Long>> top(Map<String, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_COUNT)
+                .collect(Collectors.toList());
+    }
+}
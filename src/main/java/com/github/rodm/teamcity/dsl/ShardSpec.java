@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import org.gradle.api.InvalidUserDataException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A shard specification in the form {@code index/total}, for example {@code 3/8}. The top-level project
+ * directories of a settings tree, those containing a {@code settings.kts} file, are sorted by name and
+ * assigned to shards in turn, so every node given the same tree selects the same directories.
+ */
+class ShardSpec {
+
+    private static final String SETTINGS_FILENAME = "settings.kts";
+
+    private final int index;
+
+    private final int total;
+
+    private ShardSpec(int index, int total) {
+        this.index = index;
+        this.total = total;
+    }
+
+    static ShardSpec parse(String spec) {
+        String[] parts = spec.trim().split("/");
+        if (parts.length != 2) {
+            throw new InvalidUserDataException("Invalid shard '" + spec + "', expected the format 'index/total', for example '3/8'.");
+        }
+        int index;
+        int total;
+        try {
+            index = Integer.parseInt(parts[0].trim());
+            total = Integer.parseInt(parts[1].trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidUserDataException("Invalid shard '" + spec + "', index and total must be numbers.", e);
+        }
+        if (total < 1 || index < 1 || index > total) {
+            throw new InvalidUserDataException("Invalid shard '" + spec + "', index must be between 1 and " + Math.max(total, 1) + ".");
+        }
+        return new ShardSpec(index, total);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    List<File> select(File baseDir) {
+        File[] dirs = baseDir.listFiles(ShardSpec::isProjectDir);
+        if (dirs == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(dirs, (first, second) -> first.getName().compareTo(second.getName()));
+        List<File> selected = new ArrayList<>();
+        for (int i = 0; i < dirs.length; i++) {
+            if (i % total == index - 1) {
+                selected.add(dirs[i]);
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isProjectDir(File dir) {
+        return dir.isDirectory() && !dir.isHidden() && !dir.getName().startsWith(".") && new File(dir, SETTINGS_FILENAME).isFile();
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + total;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static com.github.rodm.teamcity.dsl.GeneratorLockTask.CLASSPATH_PROPERTY;
+import static com.github.rodm.teamcity.dsl.GeneratorLockTask.MAIN_CLASS_PROPERTY;
+
+/**
+ * Runs the TeamCity DSL generator without Gradle, taking the same arguments as the generator main classes,
+ * format, base directory and destination directory. The main class and classpath are read from the lock file
+ * written by the {@code generatorLock} task, by default {@code build/teamcity-dsl/generator.lock} or the file
+ * given by the {@code teamcity.dsl.lockFile} system property.
+ * This class runs outside of Gradle and must only use the JDK.
+ */
+public class StandaloneGenerator {
+
+    static final String LOCK_FILE_PROPERTY = "teamcity.dsl.lockFile";
+    static final String DEFAULT_LOCK_FILE = "build/teamcity-dsl/generator.lock";
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length != 3) {
+            System.out.println("Usage: teamcity-dsl-generate <format> <baseDir> <destDir>");
+            System.exit(2);
+        }
+        File lockFile = new File(System.getProperty(LOCK_FILE_PROPERTY, DEFAULT_LOCK_FILE));
+        Properties lock = readLockFile(lockFile);
+        String mainClass = lock.getProperty(MAIN_CLASS_PROPERTY);
+        String classpath = lock.getProperty(CLASSPATH_PROPERTY);
+        if (mainClass == null || classpath == null) {
+            System.out.println("Lock file " + lockFile + " is incomplete, run the Gradle 'generatorLock' task to recreate it.");
+            System.exit(2);
+        }
+
+        ClassLoader classLoader = new URLClassLoader(toUrls(classpath), ClassLoader.getSystemClassLoader().getParent());
+        Thread.currentThread().setContextClassLoader(classLoader);
+        Method main = classLoader.loadClass(mainClass).getMethod("main", String[].class);
+        String[] generatorArgs = new String[] {
+                args[0], new File(args[1]).getAbsolutePath(), new File(args[2]).getAbsolutePath(), classpath
+        };
+        try {
+            main.invoke(null, (Object) generatorArgs);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Properties readLockFile(File lockFile) {
+        Properties lock = new Properties();
+        try (InputStream in = new FileInputStream(lockFile)) {
+            lock.load(in);
+        } catch (IOException e) {
+            System.out.println("Unable to read lock file " + lockFile + ", run the Gradle 'generatorLock' task to create it.");
+            System.exit(2);
+        }
+        return lock;
+    }
+
+    private static URL[] toUrls(String classpath) throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        urls.add(StandaloneGenerator.class.getProtectionDomain().getCodeSource().getLocation());
+        for (String element : classpath.split(File.pathSeparator)) {
+            urls.add(new File(element).toURI().toURL());
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
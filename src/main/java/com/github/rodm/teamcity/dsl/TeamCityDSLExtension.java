@@ -32,11 +32,23 @@ public class TeamCityDSLExtension {
 
     private PropertyState<File> destDir;
 
+    private PropertyState<Boolean> profile;
+
+    private PropertyState<Integer> timeout;
+
+    private PropertyState<Integer> stallTimeout;
+
+    private PropertyState<Integer> maxGeneratorMemory;
+
     public TeamCityDSLExtension(Project project) {
         teamcityVersion = project.property(String.class);
         format = project.property(String.class);
         baseDir = project.property(File.class);
         destDir = project.property(File.class);
+        profile = project.property(Boolean.class);
+        timeout = project.property(Integer.class);
+        stallTimeout = project.property(Integer.class);
+        maxGeneratorMemory = project.property(Integer.class);
     }
 
     public String getTeamcityVersion() {
@@ -86,4 +98,52 @@ public class TeamCityDSLExtension {
     public void setDestDir(File destDir) {
         this.destDir.set(destDir);
     }
+
+    public boolean isProfile() {
+        return profile.get();
+    }
+
+    public Provider<Boolean> getProfileProvider() {
+        return profile;
+    }
+
+    public void setProfile(boolean profile) {
+        this.profile.set(profile);
+    }
+
+    public int getTimeout() {
+        return timeout.get();
+    }
+
+    public Provider<Integer> getTimeoutProvider() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout.set(timeout);
+    }
+
+    public int getStallTimeout() {
+        return stallTimeout.get();
+    }
+
+    public Provider<Integer> getStallTimeoutProvider() {
+        return stallTimeout;
+    }
+
+    public void setStallTimeout(int stallTimeout) {
+        this.stallTimeout.set(stallTimeout);
+    }
+
+    public int getMaxGeneratorMemory() {
+        return maxGeneratorMemory.get();
+    }
+
+    public Provider<Integer> getMaxGeneratorMemoryProvider() {
+        return maxGeneratorMemory;
+    }
+
+    public void setMaxGeneratorMemory(int maxGeneratorMemory) {
+        this.maxGeneratorMemory.set(maxGeneratorMemory);
+    }
 }
@@ -30,6 +30,7 @@ import org.gradle.api.tasks.TaskContainer;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.concurrent.Callable;
 
@@ -39,6 +40,10 @@ public class TeamCityDSLPlugin implements Plugin<Project> {
 
     static final String DSL_EXCEPTION_FILENAME = "dsl_exception.xml";
 
+    static final String DSL_PROFILE_FILENAME = "dsl_profile.jfr";
+
+    static final String DSL_THREAD_DUMP_FILENAME = "dsl_thread_dump.txt";
+
     private static final String EXTENSION_NAME = "teamcityConfig";
     private static final String SOURCE_SET_NAME = "teamcity";
 
@@ -46,6 +51,10 @@ public class TeamCityDSLPlugin implements Plugin<Project> {
     private static final String DEFAULT_FORMAT = "kotlin";
     private static final String DEFAULT_BASE_DIR = ".teamcity";
     private static final String DEFAULT_DEST_DIR = "generated-configs";
+    private static final String DEFAULT_LOCK_FILE = "teamcity-dsl/generator.lock";
+    private static final int DEFAULT_TIMEOUT = 0;
+    private static final int DEFAULT_STALL_TIMEOUT = 600;
+    private static final int DEFAULT_MAX_GENERATOR_MEMORY = 0;
 
     private static final String JETBRAINS_MAVEN_REPOSITORY = "https://download.jetbrains.com/teamcity-repository";
 
@@ -69,6 +78,10 @@ public class TeamCityDSLPlugin implements Plugin<Project> {
         extension.setFormat(DEFAULT_FORMAT);
         extension.setBaseDir(new File(project.getRootDir(), DEFAULT_BASE_DIR));
         extension.setDestDir(new File(project.getBuildDir(), DEFAULT_DEST_DIR));
+        extension.setProfile(false);
+        extension.setTimeout(DEFAULT_TIMEOUT);
+        extension.setStallTimeout(DEFAULT_STALL_TIMEOUT);
+        extension.setMaxGeneratorMemory(DEFAULT_MAX_GENERATOR_MEMORY);
         return extension;
     }
 
@@ -165,22 +178,33 @@ public class TeamCityDSLPlugin implements Plugin<Project> {
     private void configureTask(Project project, TeamCityDSLExtension extension) {
         TaskContainer tasks = project.getTasks();
         tasks.create("generateConfiguration", GenerateConfigurationTask.class);
+        GeneratorLockTask lockTask = tasks.create("generatorLock", GeneratorLockTask.class);
+        lockTask.setVersion(extension.getTeamcityVersionProvider());
+        lockTask.setLockFile(new File(project.getBuildDir(), DEFAULT_LOCK_FILE));
         tasks.withType(GenerateConfigurationTask.class, task -> {
             task.setVersion(extension.getTeamcityVersionProvider());
             task.setFormat(extension.getFormatProvider());
             task.setBaseDir(extension.getBaseDirProvider());
             task.setDestDir(extension.getDestDirProvider());
+            task.setProfile(extension.getProfileProvider());
+            task.setTimeout(extension.getTimeoutProvider());
+            task.setStallTimeout(extension.getStallTimeoutProvider());
+            task.setMaxGeneratorMemory(extension.getMaxGeneratorMemoryProvider());
             task.doFirst(new Action<Task>() {
                 @Override
                 public void execute(Task task) {
-                    project.delete(new File(extension.getDestDir(), DSL_EXCEPTION_FILENAME));
+                    File destDir = ((GenerateConfigurationTask) task).getDestDir();
+                    project.delete(new File(destDir, DSL_EXCEPTION_FILENAME));
+                    project.delete(new File(destDir, DSL_PROFILE_FILENAME));
+                    project.delete(new File(destDir, DSL_THREAD_DUMP_FILENAME));
                 }
             });
         });
     }
 
     private void configureTaskType(Project project) {
-        Class type = GenerateConfigurationTask.class;
-        project.getExtensions().getExtraProperties().set(type.getSimpleName(), type);
+        for (Class type : Arrays.asList(GenerateConfigurationTask.class, MergeConfigurationTask.class)) {
+            project.getExtensions().getExtraProperties().set(type.getSimpleName(), type);
+        }
     }
 }
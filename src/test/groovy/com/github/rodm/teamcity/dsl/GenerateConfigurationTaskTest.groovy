@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.containsInAnyOrder
+import static org.hamcrest.Matchers.equalTo
+import static org.junit.Assert.assertFalse
+
+class GenerateConfigurationTaskTest {
+
+    @Rule
+    public final TemporaryFolder projectDir = new TemporaryFolder()
+
+    private Project project
+
+    @Before
+    void setup() {
+        git('init', '-q')
+        project = ProjectBuilder.builder().withProjectDir(projectDir.root).build()
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+    }
+
+    @Test
+    void 'revision settings are read from the committed tree'() {
+        createFile('.teamcity/settings.kts', 'committed root')
+        createFile('.teamcity/Project1/settings.kts', 'committed project')
+        commit()
+        createFile('.teamcity/settings.kts', 'modified root')
+        createFile('.teamcity/Project2/settings.kts', 'uncommitted project')
+
+        File revisionDir = createRevisionDir('HEAD')
+
+        assertThat(relativePaths(revisionDir), containsInAnyOrder('settings.kts', 'Project1/settings.kts'))
+        assertThat(new File(revisionDir, 'settings.kts').text, equalTo('committed root'))
+        assertThat(new File(revisionDir, 'Project1/settings.kts').text, equalTo('committed project'))
+    }
+
+    @Test
+    void 'revision settings are read from an earlier commit'() {
+        createFile('.teamcity/settings.kts', 'first')
+        commit()
+        createFile('.teamcity/settings.kts', 'second')
+        commit()
+
+        File revisionDir = createRevisionDir('HEAD~1')
+
+        assertThat(new File(revisionDir, 'settings.kts').text, equalTo('first'))
+    }
+
+    @Test
+    void 'revision settings are read when the base directory is the repository root'() {
+        project.teamcityConfig {
+            baseDir = project.projectDir
+        }
+        createFile('settings.kts', 'committed root')
+        createFile('Project1/settings.kts', 'committed project')
+        commit()
+        createFile('settings.kts', 'modified root')
+        createFile('Project2/settings.kts', 'uncommitted project')
+
+        File revisionDir = createRevisionDir('HEAD')
+
+        assertThat(new File(revisionDir, 'settings.kts').text, equalTo('committed root'))
+        assertThat(new File(revisionDir, 'Project1/settings.kts').text, equalTo('committed project'))
+        assertFalse(new File(revisionDir, 'Project2').exists())
+    }
+
+    @Test
+    void 'revision settings ignore export attributes'() {
+        createFile('.teamcity/.gitattributes', 'settings.kts export-ignore\nProject1/settings.kts export-subst\n')
+        createFile('.teamcity/settings.kts', 'committed root')
+        createFile('.teamcity/Project1/settings.kts', 'version = "$Format:%H$"')
+        commit()
+
+        File revisionDir = createRevisionDir('HEAD')
+
+        assertThat(new File(revisionDir, 'settings.kts').text, equalTo('committed root'))
+        assertThat(new File(revisionDir, 'Project1/settings.kts').text, equalTo('version = "$Format:%H$"'))
+    }
+
+    private File createRevisionDir(String revision) {
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        task.revision = revision
+        return task.createRevisionDir(revision)
+    }
+
+    private void createFile(String path, String text) {
+        File file = new File(projectDir.root, path)
+        file.parentFile.mkdirs()
+        file.text = text
+    }
+
+    private void commit() {
+        git('add', '--all')
+        git('-c', 'user.name=Test', '-c', 'user.email=test@example.com', 'commit', '-q', '-m', 'Update settings')
+    }
+
+    private void git(String... args) {
+        Process process = new ProcessBuilder(['git'] + (args as List)).directory(projectDir.root).inheritIO().start()
+        assertThat("git ${args.join(' ')}".toString(), process.waitFor(), equalTo(0))
+    }
+
+    private static List<String> relativePaths(File dir) {
+        List<String> paths = []
+        dir.eachFileRecurse(groovy.io.FileType.FILES) { paths << dir.toPath().relativize(it.toPath()).toString().replace('\\', '/') }
+        return paths
+    }
+}
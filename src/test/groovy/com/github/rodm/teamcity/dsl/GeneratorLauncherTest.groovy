@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.util.concurrent.TimeUnit
+
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.PEAK_MEMORY_PROPERTY
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.THREAD_DUMP_PROPERTY
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.THREAD_DUMP_REQUEST
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.TIMEOUT_EXIT_VALUE
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.containsString
+import static org.hamcrest.Matchers.equalTo
+import static org.hamcrest.Matchers.greaterThanOrEqualTo
+import static org.hamcrest.Matchers.nullValue
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+class GeneratorLauncherTest {
+
+    @Rule
+    public final TemporaryFolder outputDir = new TemporaryFolder()
+
+    @Test
+    void 'watchdog continues before the timeout'() {
+        GeneratorLauncher.Watchdog watchdog = new GeneratorLauncher.Watchdog(10000, 0, null, 0)
+
+        assertThat(watchdog.check(10000, false), nullValue())
+    }
+
+    @Test
+    void 'watchdog stops the generator after the timeout'() {
+        GeneratorLauncher.Watchdog watchdog = new GeneratorLauncher.Watchdog(10000, 0, null, 0)
+
+        assertThat(watchdog.check(10001, true), equalTo('Generator did not complete within 10 seconds.'))
+    }
+
+    @Test
+    void 'watchdog stops the generator when it makes no progress'() {
+        GeneratorLauncher.Watchdog watchdog = new GeneratorLauncher.Watchdog(0, 5000, null, 0)
+
+        assertThat(watchdog.check(3000, true), nullValue())
+        assertThat(watchdog.check(8000, false), nullValue())
+        assertThat(watchdog.check(8001, false), equalTo('Generator made no progress for 5 seconds.'))
+    }
+
+    @Test
+    void 'watchdog detects progress from changed thread stacks'() {
+        GeneratorLauncher.Watchdog watchdog = new GeneratorLauncher.Watchdog(0, 5000, null, 0)
+        StackTraceElement first = new StackTraceElement('Generator', 'compile', 'Generator.java', 10)
+        StackTraceElement second = new StackTraceElement('Generator', 'compile', 'Generator.java', 20)
+
+        assertTrue(watchdog.hasProgressed([1L: [first] as StackTraceElement[]]))
+        assertFalse(watchdog.hasProgressed([1L: [first] as StackTraceElement[]]))
+        assertTrue(watchdog.hasProgressed([1L: [second] as StackTraceElement[]]))
+        assertTrue(watchdog.hasProgressed([1L: [second] as StackTraceElement[], 2L: [first] as StackTraceElement[]]))
+    }
+
+    @Test
+    void 'generator stops when its input is closed'() {
+        Process process = new ProcessBuilder(SleepingGenerator.command([:], 60000)).redirectErrorStream(true).start()
+
+        process.outputStream.close()
+
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS))
+        assertThat(process.exitValue(), equalTo(1))
+    }
+
+    @Test
+    void 'generator writes a thread dump and stops when requested'() {
+        File threadDump = new File(outputDir.root, 'dsl_thread_dump.txt')
+        List<String> command = SleepingGenerator.command([(THREAD_DUMP_PROPERTY): threadDump.absolutePath], 60000)
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start()
+
+        process.outputStream.write(THREAD_DUMP_REQUEST)
+        process.outputStream.flush()
+
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS))
+        assertThat(process.exitValue(), equalTo(TIMEOUT_EXIT_VALUE))
+        assertThat(threadDump.text, containsString('SleepingGenerator.main'))
+    }
+
+    @Test
+    void 'records the retained heap with the G1 collector'() {
+        assertThat(recordRetainedHeap('-XX:+UseG1GC'), greaterThanOrEqualTo(190L))
+    }
+
+    @Test
+    void 'records the retained heap with the parallel collector'() {
+        assertThat(recordRetainedHeap('-XX:+UseParallelGC'), greaterThanOrEqualTo(190L))
+    }
+
+    @Test
+    void 'records the retained heap with the serial collector'() {
+        assertThat(recordRetainedHeap('-XX:+UseSerialGC'), greaterThanOrEqualTo(190L))
+    }
+
+    private long recordRetainedHeap(String collector) {
+        File peakMemory = new File(outputDir.root, 'peak-memory.txt')
+        List<String> command = SleepingGenerator.launcherCommand(['-Xmx512m', collector],
+                [(PEAK_MEMORY_PROPERTY): peakMemory.absolutePath], RetainingGenerator, '200')
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start()
+        process.inputStream.eachLine { }
+
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS))
+        assertThat(process.exitValue(), equalTo(0))
+        return peakMemory.text.trim() as long
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static com.github.rodm.teamcity.dsl.GeneratorLockTask.CLASSPATH_PROPERTY
+import static com.github.rodm.teamcity.dsl.GeneratorLockTask.MAIN_CLASS_PROPERTY
+import static org.hamcrest.CoreMatchers.equalTo
+import static org.hamcrest.MatcherAssert.assertThat
+
+class GeneratorLockTaskTest {
+
+    @Rule
+    public final TemporaryFolder projectDir = new TemporaryFolder()
+
+    private Project project
+
+    @Before
+    void setup() {
+        project = ProjectBuilder.builder().withProjectDir(projectDir.root).build()
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.dependencies.add('teamcity', project.files('lib/configs-dsl-kotlin.jar', 'lib/kotlin-stdlib.jar'))
+    }
+
+    @Test
+    void 'writes generator main class and classpath to lock file'() {
+        project.teamcityConfig {
+            teamcityVersion = '2017.1'
+        }
+
+        writeLockFile()
+
+        Properties lock = readLockFile()
+        assertThat(lock.getProperty(MAIN_CLASS_PROPERTY), equalTo(com.github.rodm.teamcity.dsl.v2017.GenerateConfigurationMain.name))
+        assertThat(lock.getProperty(CLASSPATH_PROPERTY), equalTo(classpath('lib/configs-dsl-kotlin.jar', 'lib/kotlin-stdlib.jar')))
+    }
+
+    @Test
+    void 'writes main class for configured TeamCity version'() {
+        project.teamcityConfig {
+            teamcityVersion = '10.0.5'
+        }
+
+        writeLockFile()
+
+        assertThat(readLockFile().getProperty(MAIN_CLASS_PROPERTY), equalTo(com.github.rodm.teamcity.dsl.v10.GenerateConfigurationMain.name))
+    }
+
+    @Test
+    void 'replaces existing lock file'() {
+        project.teamcityConfig {
+            teamcityVersion = '2017.2'
+        }
+        File lockFile = project.file('build/teamcity-dsl/generator.lock')
+        lockFile.parentFile.mkdirs()
+        lockFile.text = "${MAIN_CLASS_PROPERTY}=example.Main\nother=value\n"
+
+        writeLockFile()
+
+        Properties lock = readLockFile()
+        assertThat(lock.getProperty(MAIN_CLASS_PROPERTY), equalTo(com.github.rodm.teamcity.dsl.v2017_2.GenerateConfigurationMain.name))
+        assertThat(lock.stringPropertyNames(), equalTo([MAIN_CLASS_PROPERTY, CLASSPATH_PROPERTY] as Set))
+    }
+
+    private void writeLockFile() {
+        GeneratorLockTask task = project.tasks.getByName('generatorLock') as GeneratorLockTask
+        task.writeLockFile()
+    }
+
+    private Properties readLockFile() {
+        Properties lock = new Properties()
+        project.file('build/teamcity-dsl/generator.lock').withInputStream { lock.load(it) }
+        return lock
+    }
+
+    private String classpath(String... paths) {
+        return paths.collect { project.file(it).path }.join(File.pathSeparator)
+    }
+}
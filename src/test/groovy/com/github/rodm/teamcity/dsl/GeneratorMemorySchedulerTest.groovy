@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.equalTo
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+class GeneratorMemorySchedulerTest {
+
+    @Rule
+    public final TemporaryFolder cacheDir = new TemporaryFolder()
+
+    private GeneratorMemoryScheduler scheduler = new GeneratorMemoryScheduler()
+
+    private Logger logger = Logging.getLogger(GeneratorMemorySchedulerTest)
+
+    @Test
+    void 'heap is unknown without history'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(0L))
+    }
+
+    @Test
+    void 'heap is estimated from recorded peak'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 1000, false, logger)
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(1500L))
+    }
+
+    @Test
+    void 'heap estimate is not less than minimum'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 100, false, logger)
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(GeneratorMemoryScheduler.MINIMUM_HEAP))
+    }
+
+    @Test
+    void 'failed run does not lower the recorded peak'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 1000, false, logger)
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 500, true, logger)
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(1500L))
+    }
+
+    @Test
+    void 'failed run raises the recorded peak'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 1000, false, logger)
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 2000, true, logger)
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(3000L))
+    }
+
+    @Test
+    void 'successful run lowers the recorded peak'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 2000, true, logger)
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 1000, false, logger)
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(1500L))
+    }
+
+    @Test
+    void 'heap is unknown when recorded peak is invalid'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        historyFile << '/project/.teamcity=invalid\n'
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project/.teamcity', logger), equalTo(0L))
+    }
+
+    @Test
+    void 'recording peak does not fail when history cannot be written'() {
+        File historyFile = cacheDir.newFolder('memory-history.properties')
+        new File(historyFile, 'other') << ''
+
+        scheduler.recordPeak(historyFile, '/project/.teamcity', 1000, false, logger)
+
+        assertThat(cacheDir.root.list() as List, equalTo(['memory-history.properties']))
+    }
+
+    @Test
+    void 'recording peak keeps other entries'() {
+        File historyFile = new File(cacheDir.root, 'memory-history.properties')
+        scheduler.recordPeak(historyFile, '/project1/.teamcity', 1000, false, logger)
+        scheduler.recordPeak(historyFile, '/project2/.teamcity', 2000, false, logger)
+
+        assertThat(scheduler.estimateHeap(historyFile, '/project1/.teamcity', logger), equalTo(1500L))
+        assertThat(scheduler.estimateHeap(historyFile, '/project2/.teamcity', logger), equalTo(3000L))
+    }
+
+    @Test
+    void 'generator waits until memory is released'() {
+        scheduler.acquire(3000, 4000, logger)
+
+        CountDownLatch started = new CountDownLatch(1)
+        Thread.start {
+            scheduler.acquire(2000, 4000, logger)
+            started.countDown()
+        }
+
+        assertFalse(started.await(200, TimeUnit.MILLISECONDS))
+        scheduler.release(3000)
+        assertTrue(started.await(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    void 'generator larger than limit starts when no other generator is running'() {
+        scheduler.acquire(8000, 4000, logger)
+    }
+}
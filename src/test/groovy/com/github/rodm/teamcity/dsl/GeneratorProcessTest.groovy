@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.api.BuildCancelledException
+import org.gradle.api.logging.Logger
+import org.gradle.api.logging.Logging
+import org.gradle.initialization.DefaultBuildCancellationToken
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.THREAD_DUMP_PROPERTY
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.TIMEOUT_EXIT_VALUE
+import static com.github.rodm.teamcity.dsl.GeneratorLauncher.TIMEOUT_PROPERTY
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.containsString
+import static org.hamcrest.Matchers.equalTo
+import static org.junit.Assert.fail
+
+class GeneratorProcessTest {
+
+    @Rule
+    public final TemporaryFolder outputDir = new TemporaryFolder()
+
+    private Logger logger = Logging.getLogger(GeneratorProcessTest)
+
+    private DefaultBuildCancellationToken cancellationToken = new DefaultBuildCancellationToken()
+
+    @Test
+    void 'returns the exit value of the generator'() {
+        List<String> command = SleepingGenerator.command([:], 0)
+
+        int exitValue = new GeneratorProcess(command, outputDir.root, cancellationToken, logger).run(0)
+
+        assertThat(exitValue, equalTo(0))
+    }
+
+    @Test
+    void 'returns the failure exit value of the generator'() {
+        List<String> command = SleepingGenerator.command([:], 0, '3')
+
+        int exitValue = new GeneratorProcess(command, outputDir.root, cancellationToken, logger).run(0)
+
+        assertThat(exitValue, equalTo(3))
+    }
+
+    @Test
+    void 'returns timeout exit value when the generator times out'() {
+        File threadDump = new File(outputDir.root, 'dsl_thread_dump.txt')
+        List<String> command = SleepingGenerator.command([(TIMEOUT_PROPERTY): 1, (THREAD_DUMP_PROPERTY): threadDump.absolutePath], 60000)
+
+        int exitValue = new GeneratorProcess(command, outputDir.root, cancellationToken, logger).run(0)
+
+        assertThat(exitValue, equalTo(TIMEOUT_EXIT_VALUE))
+        assertThat(threadDump.text, containsString('Generator did not complete within 1 seconds.'))
+    }
+
+    @Test
+    void 'requests a thread dump when the generator runs past its deadline'() {
+        File threadDump = new File(outputDir.root, 'dsl_thread_dump.txt')
+        List<String> command = SleepingGenerator.command([(THREAD_DUMP_PROPERTY): threadDump.absolutePath], 60000)
+
+        int exitValue = new GeneratorProcess(command, outputDir.root, cancellationToken, logger).run(1000)
+
+        assertThat(exitValue, equalTo(TIMEOUT_EXIT_VALUE))
+        assertThat(threadDump.text, containsString('SleepingGenerator.main'))
+    }
+
+    @Test
+    void 'requests a thread dump when the build is cancelled'() {
+        File threadDump = new File(outputDir.root, 'dsl_thread_dump.txt')
+        List<String> command = SleepingGenerator.command([(THREAD_DUMP_PROPERTY): threadDump.absolutePath], 60000)
+        Thread.start {
+            Thread.sleep(1000)
+            cancellationToken.cancel()
+        }
+
+        try {
+            new GeneratorProcess(command, outputDir.root, cancellationToken, logger).run(0)
+            fail('Expected the generator to be cancelled')
+        } catch (BuildCancelledException expected) {
+        }
+
+        assertThat(threadDump.text, containsString('Generator was stopped by the Gradle build.'))
+    }
+
+    @Test(expected = BuildCancelledException)
+    void 'does not run the generator when the build is already cancelled'() {
+        cancellationToken.cancel()
+
+        new GeneratorProcess(SleepingGenerator.command([:], 60000), outputDir.root, cancellationToken, logger).run(0)
+    }
+}
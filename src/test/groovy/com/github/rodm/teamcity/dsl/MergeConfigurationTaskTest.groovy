@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.api.GradleException
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.hamcrest.CoreMatchers.containsString
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.junit.Assert.assertTrue
+import static org.junit.Assert.fail
+
+class MergeConfigurationTaskTest {
+
+    @Rule
+    public final TemporaryFolder projectDir = new TemporaryFolder()
+
+    private Project project
+
+    private MergeConfigurationTask task
+
+    @Before
+    void setup() {
+        project = ProjectBuilder.builder().withProjectDir(projectDir.root).build()
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        task = project.tasks.create('mergeConfiguration', MergeConfigurationTask) {
+            destDir = project.file('build/merged-configs')
+        }
+    }
+
+    @Test
+    void 'merges shard outputs into destination directory'() {
+        createFile('shards/1/ProjectA/project-config.xml')
+        createFile('shards/2/ProjectB/project-config.xml')
+        task.shardDirs = ['shards/1', 'shards/2']
+
+        task.merge()
+
+        assertTrue(project.file('build/merged-configs/ProjectA/project-config.xml').isFile())
+        assertTrue(project.file('build/merged-configs/ProjectB/project-config.xml').isFile())
+    }
+
+    @Test
+    void 'fails when a shard output is missing'() {
+        createFile('shards/1/ProjectA/project-config.xml')
+        task.shardDirs = ['shards/1', 'shards/2']
+
+        assertMergeFails('does not exist')
+    }
+
+    @Test
+    void 'fails when a shard output contains a dsl exception file'() {
+        createFile('shards/1/ProjectA/project-config.xml')
+        createFile('shards/2/dsl_exception.xml')
+        task.shardDirs = ['shards/1', 'shards/2']
+
+        assertMergeFails('dsl_exception.xml')
+    }
+
+    @Test
+    void 'fails when a file is generated by more than one shard'() {
+        createFile('shards/1/ProjectA/project-config.xml')
+        createFile('shards/2/ProjectA/project-config.xml')
+        task.shardDirs = ['shards/1', 'shards/2']
+
+        assertMergeFails('more than one shard')
+    }
+
+    @Test
+    void 'fails when a shard output is inside the destination directory'() {
+        createFile('build/merged-configs/shard1/ProjectA/project-config.xml')
+        task.shardDirs = ['build/merged-configs/shard1']
+
+        assertMergeFails('must not be inside the destination directory')
+        assertTrue(project.file('build/merged-configs/shard1/ProjectA/project-config.xml').isFile())
+    }
+
+    private void createFile(String path) {
+        File file = project.file(path)
+        file.parentFile.mkdirs()
+        file << '<project/>'
+    }
+
+    private void assertMergeFails(String message) {
+        try {
+            task.merge()
+            fail('Expected merge to fail')
+        } catch (GradleException e) {
+            assertThat(e.message, containsString(message))
+        }
+    }
+}
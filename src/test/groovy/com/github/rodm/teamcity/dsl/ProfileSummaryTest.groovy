@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.junit.Before
+import org.junit.Test
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.equalTo
+import static org.hamcrest.Matchers.greaterThan
+import static org.junit.Assume.assumeTrue
+
+/**
+ * The fixture was recorded with the dsl-profile.jfc settings from a program whose only work was the method
+ * ProfileFixture.allocate, allocating and summing 64 KB arrays for half a second.
+ */
+class ProfileSummaryTest {
+
+    private File recording
+
+    @Before
+    void setup() {
+        assumeTrue('Flight Recorder is not available', ProfileSummary.isSupported())
+        recording = new File(ProfileSummaryTest.getResource('profile-fixture.jfr').toURI())
+    }
+
+    @Test
+    void 'reports the method allocating the most memory first'() {
+        ProfileSummary summary = ProfileSummary.read(recording)
+
+        Map.Entry<String, Long> top = summary.topAllocationSites.first()
+        assertThat(top.key, equalTo('ProfileFixture.allocate'))
+        assertThat(top.value, greaterThan(summary.topAllocationSites.last().value))
+    }
+
+    @Test
+    void 'reports the method with the most execution samples first'() {
+        ProfileSummary summary = ProfileSummary.read(recording)
+
+        assertThat(summary.hottestMethods.first().key, equalTo('ProfileFixture.allocate'))
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.rodm.teamcity.dsl
+
+/**
+ * A generator main class for tests that writes the arguments it was given, one per line, to the file
+ * {@code generator-args.txt} in the destination directory given as its third argument.
+ */
+class RecordingGenerator {
+
+    static final String ARGS_FILENAME = 'generator-args.txt'
+
+    static void main(String[] args) {
+        File destDir = new File(args[2])
+        destDir.mkdirs()
+        new File(destDir, ARGS_FILENAME).text = args.join('\n')
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+/**
+ * A generator main class for tests that retains the number of megabytes of heap given as its argument,
+ * then allocates garbage until the young generation has been collected several times.
+ */
+class RetainingGenerator {
+
+    private static final int CHUNK_SIZE = 64 * 1024
+
+    private static List<byte[]> retained = []
+
+    static void main(String[] args) {
+        int chunks = (args[0] as int) * 1024 * 1024 / CHUNK_SIZE
+        for (int i = 0; i < chunks; i++) {
+            retained << new byte[CHUNK_SIZE]
+        }
+        long allocated = 0
+        for (int i = 0; i < 20000; i++) {
+            allocated += new byte[CHUNK_SIZE].length
+        }
+        println "Retained ${retained.size()} chunks, allocated ${allocated} bytes"
+    }
+}
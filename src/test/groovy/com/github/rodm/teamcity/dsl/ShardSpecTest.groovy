@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+import org.gradle.api.InvalidUserDataException
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.hamcrest.Matchers.contains
+import static org.hamcrest.Matchers.equalTo
+import static org.hamcrest.Matchers.empty
+
+class ShardSpecTest {
+
+    @Rule
+    public final TemporaryFolder baseDir = new TemporaryFolder()
+
+    @Test
+    void 'parses shard index and total'() {
+        ShardSpec shard = ShardSpec.parse('3/8')
+
+        assertThat(shard.index, equalTo(3))
+        assertThat(shard.total, equalTo(8))
+    }
+
+    @Test(expected = InvalidUserDataException)
+    void 'rejects shard without total'() {
+        ShardSpec.parse('3')
+    }
+
+    @Test(expected = InvalidUserDataException)
+    void 'rejects shard index greater than total'() {
+        ShardSpec.parse('9/8')
+    }
+
+    @Test(expected = InvalidUserDataException)
+    void 'rejects non numeric shard'() {
+        ShardSpec.parse('a/b')
+    }
+
+    @Test
+    void 'selects project directories in name order'() {
+        ['ProjectD', 'ProjectA', 'ProjectC', 'ProjectB', 'ProjectE'].each { createProject(it) }
+        baseDir.newFile('pom.xml')
+
+        assertThat(ShardSpec.parse('1/2').select(baseDir.root)*.name, contains('ProjectA', 'ProjectC', 'ProjectE'))
+        assertThat(ShardSpec.parse('2/2').select(baseDir.root)*.name, contains('ProjectB', 'ProjectD'))
+    }
+
+    @Test
+    void 'ignores hidden directories and directories without settings'() {
+        ['ProjectA', 'ProjectB'].each { createProject(it) }
+        createProject('.idea')
+        baseDir.newFolder('target', 'classes')
+
+        assertThat(ShardSpec.parse('1/1').select(baseDir.root)*.name, contains('ProjectA', 'ProjectB'))
+    }
+
+    @Test
+    void 'selects no directories when there are more shards than projects'() {
+        createProject('ProjectA')
+
+        assertThat(ShardSpec.parse('2/3').select(baseDir.root), empty())
+    }
+
+    private void createProject(String name) {
+        new File(baseDir.newFolder(name), 'settings.kts') << ''
+    }
+}
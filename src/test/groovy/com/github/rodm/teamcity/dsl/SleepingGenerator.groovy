@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rodm.teamcity.dsl
+
+/**
+ * A generator main class for tests that sleeps for the number of milliseconds given as its first argument,
+ * and exits with the exit value given as its second argument, if there is one.
+ */
+class SleepingGenerator {
+
+    static void main(String[] args) {
+        Thread.sleep(args[0] as long)
+        if (args.length > 1) {
+            System.exit(args[1] as int)
+        }
+    }
+
+    static List<String> command(Map<String, Object> properties, long sleep, String... args) {
+        return launcherCommand([], properties, SleepingGenerator, ([String.valueOf(sleep)] + (args as List)) as String[])
+    }
+
+    /**
+     * Returns the command to run the given test main class with {@link GeneratorLauncher} in a new JVM.
+     */
+    static List<String> launcherCommand(List<String> jvmArgs, Map<String, Object> properties, Class mainClass, String... args) {
+        List<String> command = [new File(System.getProperty('java.home'), 'bin/java').absolutePath]
+        command.addAll(jvmArgs)
+        properties.each { name, value -> command << "-D${name}=${value}".toString() }
+        command << '-cp' << classpath(mainClass) << GeneratorLauncher.name << mainClass.name
+        command.addAll(args)
+        return command
+    }
+
+    private static String classpath(Class mainClass) {
+        List<Class> classes = [GeneratorLauncher, mainClass, GroovyObject]
+        return classes.collect { new File(it.protectionDomain.codeSource.location.toURI()).absolutePath }
+                .unique().join(File.pathSeparator)
+    }
+}
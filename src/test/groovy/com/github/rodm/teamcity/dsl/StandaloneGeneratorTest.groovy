@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.rodm.teamcity.dsl
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+import java.util.concurrent.TimeUnit
+
+import static com.github.rodm.teamcity.dsl.GeneratorLockTask.CLASSPATH_PROPERTY
+import static com.github.rodm.teamcity.dsl.GeneratorLockTask.MAIN_CLASS_PROPERTY
+import static com.github.rodm.teamcity.dsl.RecordingGenerator.ARGS_FILENAME
+import static com.github.rodm.teamcity.dsl.StandaloneGenerator.LOCK_FILE_PROPERTY
+import static org.hamcrest.CoreMatchers.containsString
+import static org.hamcrest.CoreMatchers.equalTo
+import static org.hamcrest.MatcherAssert.assertThat
+import static org.junit.Assert.assertFalse
+import static org.junit.Assert.assertTrue
+
+class StandaloneGeneratorTest {
+
+    @Rule
+    public final TemporaryFolder workingDir = new TemporaryFolder()
+
+    private String output
+
+    @Test
+    void 'runs main class from lock file with absolute directories and classpath'() {
+        String classpath = classpath(RecordingGenerator, GroovyObject)
+        File lockFile = writeLockFile([(MAIN_CLASS_PROPERTY): RecordingGenerator.name, (CLASSPATH_PROPERTY): classpath])
+
+        int exitValue = run(lockFile, 'kotlin', '.teamcity', 'build/generated-configs')
+
+        assertThat(exitValue, equalTo(0))
+        File argsFile = new File(workingDir.root, "build/generated-configs/${ARGS_FILENAME}")
+        assertThat(argsFile.readLines(), equalTo([
+                'kotlin',
+                new File(workingDir.root, '.teamcity').absolutePath,
+                new File(workingDir.root, 'build/generated-configs').absolutePath,
+                classpath]))
+    }
+
+    @Test
+    void 'fails when lock file is missing'() {
+        int exitValue = run(new File(workingDir.root, 'generator.lock'), 'kotlin', '.teamcity', 'build/generated-configs')
+
+        assertThat(exitValue, equalTo(2))
+        assertThat(output, containsString("run the Gradle 'generatorLock' task to create it"))
+        assertFalse(new File(workingDir.root, 'build').exists())
+    }
+
+    @Test
+    void 'fails when lock file is incomplete'() {
+        File lockFile = writeLockFile([(MAIN_CLASS_PROPERTY): RecordingGenerator.name])
+
+        int exitValue = run(lockFile, 'kotlin', '.teamcity', 'build/generated-configs')
+
+        assertThat(exitValue, equalTo(2))
+        assertThat(output, containsString("run the Gradle 'generatorLock' task to recreate it"))
+    }
+
+    @Test
+    void 'fails with usage when arguments are missing'() {
+        File lockFile = writeLockFile([(MAIN_CLASS_PROPERTY): RecordingGenerator.name, (CLASSPATH_PROPERTY): classpath(RecordingGenerator, GroovyObject)])
+
+        int exitValue = run(lockFile, 'kotlin', '.teamcity')
+
+        assertThat(exitValue, equalTo(2))
+        assertThat(output, containsString('Usage: teamcity-dsl-generate <format> <baseDir> <destDir>'))
+    }
+
+    private File writeLockFile(Map<String, String> properties) {
+        Properties lock = new Properties()
+        lock.putAll(properties)
+        File lockFile = new File(workingDir.root, 'generator.lock')
+        lockFile.withOutputStream { lock.store(it, null) }
+        return lockFile
+    }
+
+    private int run(File lockFile, String... args) {
+        List<String> command = [new File(System.getProperty('java.home'), 'bin/java').absolutePath]
+        command << "-D${LOCK_FILE_PROPERTY}=${lockFile.absolutePath}".toString()
+        command << '-cp' << classpath(StandaloneGenerator) << StandaloneGenerator.name
+        command.addAll(args)
+        Process process = new ProcessBuilder(command).directory(workingDir.root).redirectErrorStream(true).start()
+        output = process.inputStream.text
+
+        assertTrue(process.waitFor(30, TimeUnit.SECONDS))
+        return process.exitValue()
+    }
+
+    private static String classpath(Class... classes) {
+        return classes.collect { new File(it.protectionDomain.codeSource.location.toURI()).path }.unique().join(File.pathSeparator)
+    }
+}
@@ -31,7 +31,9 @@ import static org.hamcrest.Matchers.equalTo
 import static org.hamcrest.Matchers.hasSize
 import static org.hamcrest.MatcherAssert.assertThat
 import static org.hamcrest.Matchers.instanceOf
+import static org.junit.Assert.assertFalse
 import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
 import static org.junit.Assert.assertTrue
 
 class TeamCityDSLPluginTest {
@@ -182,6 +184,144 @@ class TeamCityDSLPluginTest {
         assertThat(normalizePath(task.destDir), endsWith('/data/10.0/config/projects'))
     }
 
+    @Test
+    void 'generate configuration task does not use a shard by default'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertNull(task.shard)
+    }
+
+    @Test
+    void 'generate configuration task removes reports from its own destination directory'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.tasks.create('generateShard1', GenerateConfigurationTask) {
+            destDir = project.file('build/shards/1')
+        }
+        File shardDir = project.file('build/shards/1')
+        File defaultDir = project.file('build/generated-configs')
+        [shardDir, defaultDir].each { dir ->
+            dir.mkdirs()
+            ['dsl_exception.xml', 'dsl_profile.jfr', 'dsl_thread_dump.txt'].each { new File(dir, it) << '' }
+        }
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateShard1') as GenerateConfigurationTask
+        task.actions.first().execute(task)
+
+        assertThat(shardDir.list() as List, hasSize(0))
+        assertThat(defaultDir.list() as List, hasSize(3))
+    }
+
+    @Test
+    void 'make merge configuration task available to the project without importing'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        def type = project.extensions.extraProperties['MergeConfigurationTask']
+        assertThat(type, is(instanceOf(Class)))
+        assertThat(type.name, equalTo('com.github.rodm.teamcity.dsl.MergeConfigurationTask'))
+    }
+
+    @Test
+    void 'merge configuration task does not default to the generated configuration directory'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.tasks.create('mergeConfiguration', MergeConfigurationTask) {
+            shardDirs = ['build/shard1', 'build/shard2']
+            destDir = project.file('data/10.0/config/projects')
+        }
+
+        MergeConfigurationTask task = project.tasks.findByName('mergeConfiguration') as MergeConfigurationTask
+        assertThat(task.shardDirs.files, hasSize(2))
+        assertThat(normalizePath(task.destDir), endsWith('/data/10.0/config/projects'))
+    }
+
+    @Test
+    void 'generate configuration task does not profile by default'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertFalse(task.profile)
+    }
+
+    @Test
+    void 'generate configuration task is configured to profile'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.teamcityConfig {
+            profile = true
+        }
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertTrue(task.profile)
+    }
+
+    @Test
+    void 'generate configuration task uses the working tree by default'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertNull(task.revision)
+    }
+
+    @Test
+    void 'generate configuration task is configured with default timeouts'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertThat(task.timeout, equalTo(0))
+        assertThat(task.stallTimeout, equalTo(600))
+    }
+
+    @Test
+    void 'generate configuration task is configured with alternative timeouts'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.teamcityConfig {
+            timeout = 900
+            stallTimeout = 120
+        }
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertThat(task.timeout, equalTo(900))
+        assertThat(task.stallTimeout, equalTo(120))
+    }
+
+    @Test
+    void 'generate configuration task does not limit generator memory by default'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertThat(task.maxGeneratorMemory, equalTo(0))
+    }
+
+    @Test
+    void 'generate configuration task is configured with generator memory limit'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.teamcityConfig {
+            maxGeneratorMemory = 6144
+        }
+
+        GenerateConfigurationTask task = project.tasks.findByName('generateConfiguration') as GenerateConfigurationTask
+        assertThat(task.maxGeneratorMemory, equalTo(6144))
+    }
+
+    @Test
+    void 'applying plugin adds generatorLock task'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+
+        GeneratorLockTask task = project.tasks.findByName('generatorLock') as GeneratorLockTask
+        assertNotNull(task)
+        assertThat(normalizePath(task.lockFile), endsWith('/build/teamcity-dsl/generator.lock'))
+    }
+
+    @Test
+    void 'generatorLock task uses configured version'() {
+        project.apply plugin: 'com.github.rodm.teamcity-dsl'
+        project.teamcityConfig {
+            teamcityVersion = '2017.2'
+        }
+
+        GeneratorLockTask task = project.tasks.findByName('generatorLock') as GeneratorLockTask
+        assertThat(task.version, equalTo('2017.2'))
+    }
+
     private static String normalizePath(File path) {
         path.canonicalPath.replace('\\', '/')
     }